@@ -0,0 +1,56 @@
+package com.paxa.util;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Response line rendering, old String.format vs LineTemplate
+
+./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineTemplateBenchmark {
+    private final Request request = new Request.Builder()
+        .url("http://example.com/user/v1/profile?id=5")
+        .get().build();
+
+    private final Response response = new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .build();
+
+    private final String url = request.url().toString();
+    private final LineTemplate template = LineTemplate.compile(CompactOkhttpLogger.DEFAULT_RESPONSE_FORMAT);
+    private long tookMs = 275;
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format("HTTP RESP: %s %s -> %d (%d ms)", request.method(), request.url(), response.code(), tookMs);
+    }
+
+    @Benchmark
+    public String lineTemplate() {
+        StringBuffer out = new StringBuffer();
+        template.render(out, request, url, null, response, tookMs, null);
+        return out.toString();
+    }
+}
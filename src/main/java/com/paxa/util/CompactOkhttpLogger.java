@@ -1,6 +1,7 @@
 package com.paxa.util;
 
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -9,8 +10,14 @@ import okhttp3.Protocol;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.FormBody;
 import okio.Buffer;
+import okio.BufferedSink;
 import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +26,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
 
 import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
@@ -31,6 +39,10 @@ https://github.com/square/okhttp/blob/master/okhttp-logging-interceptor/src/main
  */
 
 public class CompactOkhttpLogger implements Interceptor {
+    public static final String DEFAULT_REQUEST_FORMAT = "HTTP REQ: {method} {url} {protocol}";
+    public static final String DEFAULT_RESPONSE_FORMAT = "HTTP RESP: {method} {url} -> {status} ({ms} ms)";
+    public static final String DEFAULT_ERROR_FORMAT = "HTTP RESP: {method} {url} -> ERROR {error} ({ms} ms)";
+
     private final Logger logger;
     private boolean logHeaders = false;
     private boolean logBody = false;
@@ -39,6 +51,22 @@ public class CompactOkhttpLogger implements Interceptor {
     private final Set<String> headersToRedact = new HashSet<>();
     private final Set<String> onlyHeaders = new HashSet<>();
     private final Set<String> skipHeaders = new HashSet<>();
+    private final Set<String> formFieldsToRedact = new HashSet<>();
+    private long partPreviewLimit = 256;
+    // case insensitive lookup without lowercasing names on every call
+    private final Set<String> queryParamsToRedact = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private int maxUrlLength = 0;
+    private final RouteTable<CompactOkhttpLogger> routes = new RouteTable<>();
+    // set when this logger is a route profile, redactions and formats of parent also apply
+    private CompactOkhttpLogger parent;
+    // null means parent's format or default
+    private LineTemplate requestTemplate;
+    private LineTemplate responseTemplate;
+    private LineTemplate errorTemplate;
+
+    private static final LineTemplate DEFAULT_REQUEST_TEMPLATE = LineTemplate.compile(DEFAULT_REQUEST_FORMAT);
+    private static final LineTemplate DEFAULT_RESPONSE_TEMPLATE = LineTemplate.compile(DEFAULT_RESPONSE_FORMAT);
+    private static final LineTemplate DEFAULT_ERROR_TEMPLATE = LineTemplate.compile(DEFAULT_ERROR_FORMAT);
 
     public interface FailureFilterFn {
         boolean isFailure(Response response, boolean hasError);
@@ -106,6 +134,32 @@ public class CompactOkhttpLogger implements Interceptor {
         return this;
     }
 
+    public CompactOkhttpLogger redactFormFields(String ...fields) {
+        for (String field : fields) {
+            formFieldsToRedact.add(field.toLowerCase());
+        }
+        return this;
+    }
+
+    public CompactOkhttpLogger redactQueryParams(String ...params) {
+        for (String param : params) {
+            queryParamsToRedact.add(param);
+        }
+        return this;
+    }
+
+    // longer urls are cut and marked with "...(N chars)", 0 to print full url
+    public CompactOkhttpLogger maxUrlLength(int length) {
+        maxUrlLength = length;
+        return this;
+    }
+
+    // max bytes of text multipart part to print, 0 to print only name, type and size
+    public CompactOkhttpLogger partPreviewLimit(long bytes) {
+        partPreviewLimit = bytes;
+        return this;
+    }
+
     public CompactOkhttpLogger skipCommonHeaders() {
         logHeaders = true;
         skipHeaders.add("server");
@@ -132,6 +186,41 @@ public class CompactOkhttpLogger implements Interceptor {
         return this;
     }
 
+    // templates are parsed here once, see LineTemplate for placeholders
+    public CompactOkhttpLogger requestFormat(String template) {
+        requestTemplate = LineTemplate.compile(template);
+        return this;
+    }
+
+    public CompactOkhttpLogger responseFormat(String template) {
+        responseTemplate = LineTemplate.compile(template);
+        return this;
+    }
+
+    public CompactOkhttpLogger errorFormat(String template) {
+        errorTemplate = LineTemplate.compile(template);
+        return this;
+    }
+
+    // calls matching pattern are logged by profile instead of this logger
+    // pattern is host with optional path prefix: "api.example.com/payments/v1", "*.cdn.example.com", "*"
+    // redactions, url length and formats of this logger still apply to profile, profile can only add to them
+    public CompactOkhttpLogger route(String pattern, CompactOkhttpLogger profile) {
+        if (profile == null || this.equals(profile)) {
+            throw new IllegalArgumentException("Route profile should be another CompactOkhttpLogger");
+        }
+        // nested routing is not supported, this also prevents routing cycles
+        if (parent != null || !profile.routes.isEmpty()) {
+            throw new IllegalArgumentException("Route profile can not have own routes");
+        }
+        if (profile.parent != null && !this.equals(profile.parent)) {
+            throw new IllegalArgumentException("Route profile is already used by another CompactOkhttpLogger");
+        }
+        profile.parent = this;
+        routes.add(pattern, profile);
+        return this;
+    }
+
     public CompactOkhttpLogger logAsDebug() {
         logAsDebug = true;
         return this;
@@ -161,16 +250,22 @@ public class CompactOkhttpLogger implements Interceptor {
     @NotNull
     @Override
     public Response intercept(@NotNull Chain chain) throws IOException {
+        if (!routes.isEmpty()) {
+            CompactOkhttpLogger profile = routes.resolve(chain.request().url());
+            if (profile != null) {
+                return profile.intercept(chain);
+            }
+        }
+
         long startNs = System.nanoTime();
         StringBuffer reqBuffer = new StringBuffer();
+        String url = chain.request().url().toString();
+        Connection connection = chain.connection();
         try {
             Request request = chain.request();
-            Connection connection = chain.connection();
+            url = safePrintUrl(request.url());
 
-            reqBuffer.append(String.format("HTTP REQ: %s %s", request.method(), request.url()));
-            if (connection != null) {
-                reqBuffer.append(' ').append(connection.protocol());
-            }
+            requestTemplate().render(reqBuffer, request, url, connection, null, 0, null);
 
             if (logHeaders) {
                 String headersStr = printHeaders(request.headers());
@@ -186,6 +281,11 @@ public class CompactOkhttpLogger implements Interceptor {
                         reqBuffer.append("\n---\n(duplex request body omitted)");
                     } else if (requestBody.isOneShot()) {
                         reqBuffer.append("\n---\n(one-shot body omitted)");
+                    } else if (requestBody instanceof MultipartBody) {
+                        // don't buffer file parts, print only summary of each part
+                        reqBuffer.append("\n---\n").append(printMultipart((MultipartBody) requestBody));
+                    } else if (requestBody instanceof FormBody) {
+                        reqBuffer.append("\n---\n").append(printFormBody((FormBody) requestBody));
                     } else if (bodyHasUnknownEncoding(request.headers())) {
                         reqBuffer.append("\n---\n(encoded body omitted)");
                     } else {
@@ -215,8 +315,12 @@ public class CompactOkhttpLogger implements Interceptor {
             response = chain.proceed(chain.request());
         } catch (Exception e) {
             long tookMs = Math.round((System.nanoTime() - startNs) / 1_000_000.0);
+            // error line reuses url and connection of this call, see logExceptionResponse
+            Request failedRequest = chain.request().newBuilder()
+                    .tag(RenderedCall.class, new RenderedCall(url, connection))
+                    .build();
             if (logOnlyFailuresFn == null) {
-                logExceptionResponse(e, chain.request(), tookMs);
+                logExceptionResponse(e, failedRequest, tookMs);
             } else {
                 Response response1 = new Response.Builder()
                         .request(chain.request())
@@ -226,7 +330,7 @@ public class CompactOkhttpLogger implements Interceptor {
                         .build();
                 if (logOnlyFailuresFn.isFailure(response1, true)) {
                     logMessage(reqBuffer.toString());
-                    logExceptionResponse(e, chain.request(), tookMs);
+                    logExceptionResponse(e, failedRequest, tookMs);
                 }
             }
 
@@ -238,8 +342,7 @@ public class CompactOkhttpLogger implements Interceptor {
             Request request = chain.request();
             long tookMs = Math.round((System.nanoTime() - startNs) / 1_000_000.0);
 
-            resBuffer.append(String.format("HTTP RESP: %s %s -> %d (%d ms)",
-                    request.method(), request.url(), response.code(), tookMs));
+            responseTemplate().render(resBuffer, request, url, connection, response, tookMs, null);
 
             if (logHeaders) {
                 String headersStr = printHeaders(response.headers());
@@ -310,15 +413,278 @@ public class CompactOkhttpLogger implements Interceptor {
                 continue;
             }
 
-            String value = headersToRedact.contains(headerLow) ? "██" : headers.value(i);
+            String value = isRedactedHeader(headerLow) ? "██" : headers.value(i);
             result.append(headers.name(i)).append(": ").append(value).append('\n');
         }
         return result.toString().trim();
     }
 
+    private LineTemplate requestTemplate() {
+        if (requestTemplate != null) {
+            return requestTemplate;
+        }
+        return parent == null ? DEFAULT_REQUEST_TEMPLATE : parent.requestTemplate();
+    }
+
+    private LineTemplate responseTemplate() {
+        if (responseTemplate != null) {
+            return responseTemplate;
+        }
+        return parent == null ? DEFAULT_RESPONSE_TEMPLATE : parent.responseTemplate();
+    }
+
+    private LineTemplate errorTemplate() {
+        if (errorTemplate != null) {
+            return errorTemplate;
+        }
+        return parent == null ? DEFAULT_ERROR_TEMPLATE : parent.errorTemplate();
+    }
+
+    private int maxUrlLength() {
+        if (maxUrlLength > 0 || parent == null) {
+            return maxUrlLength;
+        }
+        return parent.maxUrlLength();
+    }
+
+    private boolean isRedactedHeader(String headerLow) {
+        return headersToRedact.contains(headerLow) || parent != null && parent.isRedactedHeader(headerLow);
+    }
+
+    private boolean hasQueryRedaction() {
+        return !queryParamsToRedact.isEmpty() || parent != null && parent.hasQueryRedaction();
+    }
+
+    private boolean isRedactedQueryParam(String name) {
+        return queryParamsToRedact.contains(name) || parent != null && parent.isRedactedQueryParam(name);
+    }
+
+    private boolean isRedactedFormField(String nameLow) {
+        return formFieldsToRedact.contains(nameLow) || parent != null && parent.isRedactedFormField(nameLow);
+    }
+
+    public String printUrl(HttpUrl url) {
+        String result = url.toString();
+        if (hasQueryRedaction() && url.querySize() > 0) {
+            result = redactQuery(url, result);
+        }
+        int maxLength = maxUrlLength();
+        if (maxLength > 0 && result.length() > maxLength) {
+            result = result.substring(0, maxLength) + "...(" + result.length() + " chars)";
+        }
+        return result;
+    }
+
+    // falls back to raw url, so error in redaction doesn't fail the request
+    private String safePrintUrl(HttpUrl url) {
+        try {
+            return printUrl(url);
+        } catch (Exception e) {
+            logger.error("Error in http logger", e);
+            return url.toString();
+        }
+    }
+
+    // replaces values of redacted params in rendered url, names are taken from already parsed HttpUrl
+    private String redactQuery(HttpUrl url, String rendered) {
+        boolean hasRedacted = false;
+        for (int i = 0; i < url.querySize() && !hasRedacted; i++) {
+            hasRedacted = isRedactedQueryParam(url.queryParameterName(i));
+        }
+        if (!hasRedacted) {
+            return rendered;
+        }
+
+        // HttpUrl encodes '?' and '#' in path, so first '?' starts the query
+        int queryStart = rendered.indexOf('?');
+        if (queryStart == -1) {
+            return rendered;
+        }
+        int queryEnd = rendered.indexOf('#', queryStart);
+        if (queryEnd == -1) {
+            queryEnd = rendered.length();
+        }
+
+        StringBuilder result = new StringBuilder(rendered.length());
+        result.append(rendered, 0, queryStart + 1);
+        int pos = queryStart + 1;
+        for (int i = 0; i < url.querySize(); i++) {
+            int end = rendered.indexOf('&', pos);
+            if (end == -1 || end > queryEnd) {
+                end = queryEnd;
+            }
+            if (i > 0) {
+                result.append('&');
+            }
+            int eq = rendered.indexOf('=', pos);
+            if (eq != -1 && eq < end && isRedactedQueryParam(url.queryParameterName(i))) {
+                result.append(rendered, pos, eq + 1).append("██");
+            } else {
+                result.append(rendered, pos, end);
+            }
+            pos = end + 1;
+        }
+        result.append(rendered, queryEnd, rendered.length());
+        return result.toString();
+    }
+
+    public String printFormBody(FormBody body) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < body.size(); i++) {
+            if (i > 0) {
+                result.append('&');
+            }
+            String value = isRedactedFormField(body.name(i).toLowerCase()) ? "██" : body.encodedValue(i);
+            result.append(body.encodedName(i)).append('=').append(value);
+        }
+        return result.toString();
+    }
+
+    public String printMultipart(MultipartBody body) throws IOException {
+        StringBuilder result = new StringBuilder();
+        for (MultipartBody.Part part : body.parts()) {
+            if (result.length() > 0) {
+                result.append('\n');
+            }
+            result.append("part");
+
+            String disposition = part.headers() == null ? null : part.headers().get("Content-Disposition");
+            String name = dispositionParam(disposition, "name");
+            String filename = dispositionParam(disposition, "filename");
+            if (name != null) {
+                result.append(" name=\"").append(name).append('"');
+            }
+            if (filename != null) {
+                result.append(" filename=\"").append(filename).append('"');
+            }
+
+            RequestBody partBody = part.body();
+            MediaType contentType = partBody.contentType();
+            if (contentType != null) {
+                result.append(' ').append(contentType.type()).append('/').append(contentType.subtype());
+            }
+
+            long size = partBody.contentLength();
+            boolean redacted = name != null && isRedactedFormField(name.toLowerCase());
+            if (!redacted && filename == null && partPreviewLimit > 0 && isTextPart(contentType, name)
+                    && !partBody.isOneShot() && !partBody.isDuplex()) {
+                appendPartPreview(result, partBody, contentType);
+            } else {
+                if (size == -1L) {
+                    result.append(" unknown size");
+                } else {
+                    result.append(' ').append(size).append(" bytes");
+                }
+                if (redacted) {
+                    result.append(": ██");
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    private void appendPartPreview(StringBuilder result, RequestBody partBody, MediaType contentType) throws IOException {
+        PreviewSink preview = new PreviewSink(partPreviewLimit);
+        BufferedSink sink = Okio.buffer(preview);
+        partBody.writeTo(sink);
+        sink.flush();
+
+        Charset charset = contentType == null ? null : contentType.charset();
+        if (charset == null) {
+            charset = Charset.defaultCharset();
+        }
+        result.append(' ').append(preview.total).append(" bytes: ").append(preview.buffer.readString(charset));
+        if (preview.total > partPreviewLimit) {
+            result.append("...");
+        }
+    }
+
+    // formName is name from Content-Disposition, null for parts which are not form fields
+    protected Boolean isTextPart(MediaType contentType, String formName) {
+        if (contentType == null) {
+            // plain form fields are added without content type, other parts without it can be binary
+            return formName != null;
+        }
+        String subtype = contentType.subtype();
+        return "text".equals(contentType.type()) || subtype.contains("json") || subtype.contains("xml")
+                || "x-www-form-urlencoded".equals(subtype);
+    }
+
+    // value of param in header like: form-data; name="file"; filename="photo.jpg"
+    private static String dispositionParam(String disposition, String param) {
+        if (disposition == null) {
+            return null;
+        }
+        String key = " " + param + "=\"";
+        int start = disposition.indexOf(key);
+        if (start == -1) {
+            return null;
+        }
+        start += key.length();
+        int end = disposition.indexOf('"', start);
+        return end == -1 ? disposition.substring(start) : disposition.substring(start, end);
+    }
+
+    // keeps first `limit` bytes written and discards the rest, so previewing a part never holds it in memory
+    private static final class PreviewSink implements Sink {
+        private final Buffer buffer = new Buffer();
+        private final long limit;
+        private long total = 0;
+
+        PreviewSink(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(@NotNull Buffer source, long byteCount) throws IOException {
+            long keep = Math.min(byteCount, limit - buffer.size());
+            if (keep > 0) {
+                buffer.write(source, keep);
+            }
+            source.skip(byteCount - Math.max(keep, 0));
+            total += byteCount;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @NotNull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // url and connection already rendered by intercept, attached to failed request as tag
+    private static final class RenderedCall {
+        private final String url;
+        private final Connection connection;
+
+        RenderedCall(String url, Connection connection) {
+            this.url = url;
+            this.connection = connection;
+        }
+    }
+
+    // called by intercept when call fails, override to customize error line
     protected void logExceptionResponse(Exception e, Request request, long tookMs) {
-        logMessage(String.format("HTTP RESP: %s %s -> ERROR %s %s (%d ms)",
-                request.method(), request.url(), e.getClass().getName(), e.getMessage(), tookMs));
+        RenderedCall call = request.tag(RenderedCall.class);
+        if (call == null) {
+            logExceptionResponse(e, request, safePrintUrl(request.url()), null, tookMs);
+        } else {
+            logExceptionResponse(e, request, call.url, call.connection, tookMs);
+        }
+    }
+
+    protected void logExceptionResponse(Exception e, Request request, String url, Connection connection, long tookMs) {
+        StringBuffer buffer = new StringBuffer();
+        errorTemplate().render(buffer, request, url, connection, null, tookMs, e);
+        logMessage(buffer.toString());
     }
 
     public Boolean promisesBody(Response response) {
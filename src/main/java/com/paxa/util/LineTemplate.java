@@ -0,0 +1,257 @@
+package com.paxa.util;
+
+import okhttp3.Connection;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Log line template, parsed once into a list of segments and rendered with plain appends.
+
+Placeholders:
+  {method} {url} {scheme} {host} {port} {route} {query} {protocol}
+  {status} {message} {ms} {error} {header:Name} {resp-header:Name}
+
+{url} and {query} use the url rendered by CompactOkhttpLogger.printUrl, with redacted params.
+Use {{ and }} for literal braces. Placeholders without a value render as empty string,
+when they end the line the spaces before them are trimmed, so "{url} {protocol}" has no trailing space.
+Template that ends with a literal keeps it as is, including trailing spaces.
+ */
+public final class LineTemplate {
+    private static final int LITERAL = 0;
+    private static final int METHOD = 1;
+    private static final int URL = 2;
+    private static final int SCHEME = 3;
+    private static final int HOST = 4;
+    private static final int PORT = 5;
+    private static final int ROUTE = 6;
+    private static final int QUERY = 7;
+    private static final int PROTOCOL = 8;
+    private static final int STATUS = 9;
+    private static final int MESSAGE = 10;
+    private static final int MS = 11;
+    private static final int ERROR = 12;
+    private static final int HEADER = 13;
+    private static final int RESP_HEADER = 14;
+
+    private final String source;
+    private final int[] kinds;
+    private final String[] args;
+    // length of literal without trailing spaces
+    private final int[] textLengths;
+
+    private LineTemplate(String source, int[] kinds, String[] args) {
+        this.source = source;
+        this.kinds = kinds;
+        this.args = args;
+        this.textLengths = new int[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == LITERAL) {
+                int length = args[i].length();
+                while (length > 0 && args[i].charAt(length - 1) == ' ') {
+                    length--;
+                }
+                textLengths[i] = length;
+            }
+        }
+    }
+
+    public static LineTemplate compile(String template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Template can not be null");
+        }
+
+        List<Integer> kinds = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == '{' && i + 1 < template.length() && template.charAt(i + 1) == '{') {
+                literal.append('{');
+                i += 2;
+            } else if (c == '}' && i + 1 < template.length() && template.charAt(i + 1) == '}') {
+                literal.append('}');
+                i += 2;
+            } else if (c == '{') {
+                int end = template.indexOf('}', i);
+                if (end == -1) {
+                    throw new IllegalArgumentException("Unclosed placeholder at " + i + " in template: " + template);
+                }
+                if (literal.length() > 0) {
+                    kinds.add(LITERAL);
+                    args.add(literal.toString());
+                    literal.setLength(0);
+                }
+                String name = template.substring(i + 1, end).trim();
+                String arg = null;
+                int colon = name.indexOf(':');
+                if (colon != -1) {
+                    arg = name.substring(colon + 1).trim();
+                    name = name.substring(0, colon).trim();
+                }
+                kinds.add(placeholderKind(name, arg, template));
+                args.add(arg);
+                i = end + 1;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            kinds.add(LITERAL);
+            args.add(literal.toString());
+        }
+
+        int[] kindsArr = new int[kinds.size()];
+        for (int k = 0; k < kindsArr.length; k++) {
+            kindsArr[k] = kinds.get(k);
+        }
+        return new LineTemplate(template, kindsArr, args.toArray(new String[0]));
+    }
+
+    private static int placeholderKind(String name, String arg, String template) {
+        boolean needsArg = "header".equals(name) || "resp-header".equals(name);
+        if (needsArg && (arg == null || arg.isEmpty())) {
+            throw new IllegalArgumentException("Placeholder {" + name + ":Name} requires header name in template: " + template);
+        }
+        if (!needsArg && arg != null) {
+            throw new IllegalArgumentException("Placeholder {" + name + "} does not take argument in template: " + template);
+        }
+
+        switch (name) {
+            case "method": return METHOD;
+            case "url": return URL;
+            case "scheme": return SCHEME;
+            case "host": return HOST;
+            case "port": return PORT;
+            case "route": return ROUTE;
+            case "query": return QUERY;
+            case "protocol": return PROTOCOL;
+            case "status": return STATUS;
+            case "message": return MESSAGE;
+            case "ms": return MS;
+            case "error": return ERROR;
+            case "header": return HEADER;
+            case "resp-header": return RESP_HEADER;
+            default:
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "} in template: " + template);
+        }
+    }
+
+    public String source() { return source; }
+
+    // connection, response and error can be null
+    // url is passed already rendered, so it's computed once per call
+    public void render(StringBuffer out, Request request, String url, Connection connection,
+                       Response response, long tookMs, Exception error) {
+        int contentEnd = out.length();
+        boolean emptyTail = false;
+        for (int i = 0; i < kinds.length; i++) {
+            int before = out.length();
+            switch (kinds[i]) {
+                case LITERAL:
+                    out.append(args[i]);
+                    break;
+                case METHOD:
+                    out.append(request.method());
+                    break;
+                case URL:
+                    out.append(url);
+                    break;
+                case SCHEME:
+                    out.append(request.url().scheme());
+                    break;
+                case HOST:
+                    out.append(request.url().host());
+                    break;
+                case PORT:
+                    out.append(request.url().port());
+                    break;
+                case ROUTE:
+                    out.append(request.url().encodedPath());
+                    break;
+                case QUERY:
+                    appendQuery(out, url);
+                    break;
+                case PROTOCOL:
+                    if (connection != null) {
+                        out.append(connection.protocol());
+                    }
+                    break;
+                case STATUS:
+                    if (response != null) {
+                        out.append(response.code());
+                    }
+                    break;
+                case MESSAGE:
+                    if (response != null) {
+                        out.append(response.message());
+                    }
+                    break;
+                case MS:
+                    out.append(tookMs);
+                    break;
+                case ERROR:
+                    if (error != null) {
+                        out.append(error.getClass().getName()).append(' ').append(error.getMessage());
+                    }
+                    break;
+                case HEADER:
+                    appendIfPresent(out, request.header(args[i]));
+                    break;
+                case RESP_HEADER:
+                    if (response != null) {
+                        appendIfPresent(out, response.header(args[i]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (kinds[i] == LITERAL) {
+                // literal that ends the template is always kept, including its spaces
+                if (i == kinds.length - 1) {
+                    contentEnd = out.length();
+                    emptyTail = false;
+                } else if (textLengths[i] > 0) {
+                    contentEnd = before + textLengths[i];
+                    emptyTail = false;
+                }
+            } else if (out.length() == before) {
+                emptyTail = true;
+            } else {
+                contentEnd = out.length();
+                emptyTail = false;
+            }
+        }
+
+        // drop separators left before empty placeholders at the end of line
+        if (emptyTail) {
+            out.setLength(contentEnd);
+        }
+    }
+
+    // query is taken from rendered url, so it's redacted and capped the same way
+    private static void appendQuery(StringBuffer out, String url) {
+        int start = url.indexOf('?');
+        if (start == -1) {
+            return;
+        }
+        int end = url.indexOf('#', start);
+        out.append(url, start + 1, end == -1 ? url.length() : end);
+    }
+
+    private static void appendIfPresent(StringBuffer out, String value) {
+        if (value != null) {
+            out.append(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
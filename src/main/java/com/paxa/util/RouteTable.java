@@ -0,0 +1,195 @@
+package com.paxa.util;
+
+import okhttp3.HttpUrl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Maps host and path prefix patterns to values, like "api.example.com/payments/v1", "*.cdn.example.com" or "*".
+
+Hosts are stored in a trie by labels from right to left, "*." prefix matches any number of subdomains,
+each host node has own trie of path segments. Most specific host wins, then longest path prefix.
+Path prefix is matched by whole segments, so "/v1" matches "/v1" and "/v1/users" but not "/v10".
+Pattern path is percent-decoded when added and matched against decoded HttpUrl.pathSegments(),
+so "/a%20b" and "/a b" are the same route.
+
+Candidate path tries for a host are cached, so resolving a url is a map lookup plus walk over its path segments.
+Routes are expected to be added at configuration time, before the table is used.
+ */
+final class RouteTable<V> {
+    private static final int MAX_CACHED_HOSTS = 1024;
+
+    private final HostNode<V> root = new HostNode<>();
+    private final Map<String, List<PathNode<V>>> hostCache = new ConcurrentHashMap<>();
+
+    private static final class HostNode<V> {
+        private final Map<String, HostNode<V>> children = new HashMap<>();
+        private PathNode<V> exact;
+        private PathNode<V> wildcard;
+    }
+
+    private static final class PathNode<V> {
+        private final Map<String, PathNode<V>> children = new HashMap<>();
+        private V value;
+    }
+
+    public void add(String pattern, V value) {
+        String trimmed = pattern == null ? "" : pattern.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Route pattern can not be empty");
+        }
+        int slash = trimmed.indexOf('/');
+        String host = (slash == -1 ? trimmed : trimmed.substring(0, slash)).toLowerCase();
+        String path = slash == -1 ? "" : trimmed.substring(slash);
+        if (host.isEmpty()) {
+            throw new IllegalArgumentException("Route pattern should start with host or *: " + pattern);
+        }
+
+        boolean wildcard = false;
+        if ("*".equals(host)) {
+            wildcard = true;
+            host = "";
+        } else if (host.startsWith("*.")) {
+            wildcard = true;
+            host = host.substring(2);
+            if (host.isEmpty()) {
+                throw new IllegalArgumentException("Route pattern should have host after *.: " + pattern);
+            }
+        }
+        if (host.contains("*")) {
+            throw new IllegalArgumentException("Wildcard is only allowed as first host label: " + pattern);
+        }
+        // HttpUrl.host() never has port, so pattern with port would never match
+        if (host.contains(":")) {
+            throw new IllegalArgumentException("Route pattern can not have port: " + pattern);
+        }
+
+        // validated before trie is changed
+        List<String> segments = decodedSegments(path, pattern);
+
+        HostNode<V> hostNode = root;
+        String[] labels = host.isEmpty() ? new String[0] : host.split("\\.");
+        for (int i = labels.length - 1; i >= 0; i--) {
+            hostNode = hostChild(hostNode, labels[i]);
+        }
+
+        PathNode<V> pathNode;
+        if (wildcard) {
+            if (hostNode.wildcard == null) {
+                hostNode.wildcard = new PathNode<>();
+            }
+            pathNode = hostNode.wildcard;
+        } else {
+            if (hostNode.exact == null) {
+                hostNode.exact = new PathNode<>();
+            }
+            pathNode = hostNode.exact;
+        }
+
+        for (String segment : segments) {
+            if (!segment.isEmpty()) {
+                pathNode = pathChild(pathNode, segment);
+            }
+        }
+        pathNode.value = value;
+        hostCache.clear();
+    }
+
+    // decoded the same way as HttpUrl.pathSegments(), which is what resolve() walks
+    private static List<String> decodedSegments(String path, String pattern) {
+        if (path.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (path.indexOf('?') != -1 || path.indexOf('#') != -1) {
+            throw new IllegalArgumentException("Route pattern can not have query or fragment: " + pattern);
+        }
+        return HttpUrl.get("http://localhost" + path).pathSegments();
+    }
+
+    private static <V> HostNode<V> hostChild(HostNode<V> node, String label) {
+        HostNode<V> child = node.children.get(label);
+        if (child == null) {
+            child = new HostNode<>();
+            node.children.put(label, child);
+        }
+        return child;
+    }
+
+    private static <V> PathNode<V> pathChild(PathNode<V> node, String segment) {
+        PathNode<V> child = node.children.get(segment);
+        if (child == null) {
+            child = new PathNode<>();
+            node.children.put(segment, child);
+        }
+        return child;
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty() && root.exact == null && root.wildcard == null;
+    }
+
+    // returns null when nothing matches
+    public V resolve(HttpUrl url) {
+        List<PathNode<V>> candidates = hostCache.get(url.host());
+        if (candidates == null) {
+            candidates = hostCandidates(url.host());
+            if (hostCache.size() >= MAX_CACHED_HOSTS) {
+                hostCache.clear();
+            }
+            hostCache.put(url.host(), candidates);
+        }
+
+        List<String> segments = url.pathSegments();
+        for (int c = 0; c < candidates.size(); c++) {
+            PathNode<V> node = candidates.get(c);
+            V found = node.value;
+            for (int i = 0; i < segments.size(); i++) {
+                node = node.children.get(segments.get(i));
+                if (node == null) {
+                    break;
+                }
+                if (node.value != null) {
+                    found = node.value;
+                }
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    // path tries matching the host, most specific first
+    private List<PathNode<V>> hostCandidates(String host) {
+        List<PathNode<V>> result = new ArrayList<>();
+        String[] labels = host.split("\\.");
+        HostNode<V> node = root;
+        // wildcard of a node matches only when there are labels left
+        if (node.wildcard != null) {
+            result.add(node.wildcard);
+        }
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.children.get(labels[i]);
+            if (node == null) {
+                break;
+            }
+            if (i == 0) {
+                if (node.exact != null) {
+                    result.add(node.exact);
+                }
+            } else if (node.wildcard != null) {
+                result.add(node.wildcard);
+            }
+        }
+
+        List<PathNode<V>> reversed = new ArrayList<>(result.size());
+        for (int i = result.size() - 1; i >= 0; i--) {
+            reversed.add(result.get(i));
+        }
+        return reversed;
+    }
+}
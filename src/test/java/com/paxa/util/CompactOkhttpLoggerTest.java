@@ -3,8 +3,13 @@ package com.paxa.util;
 import org.slf4j.Logger;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
 import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.HttpUrl;
 import okhttp3.RequestBody;
+import okhttp3.MultipartBody;
+import okhttp3.FormBody;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import org.junit.jupiter.api.Test;
@@ -18,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.net.SocketTimeoutException;
+import java.net.ConnectException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -378,4 +384,356 @@ public class CompactOkhttpLoggerTest {
                         "this is good bye"
         );
     }
+
+    @Test
+    public void shouldPrintCustomFormat() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false)
+                .requestFormat("> {method} {route} {header:x-request-id}")
+                .responseFormat("< {method} {route} -> {status} ({ms} ms) {header:x-request-id}");
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(mockServer.url("/foo?a=1"))
+                .header("x-request-id", "req-1")
+                .get()
+                .build();
+
+        httpClient.newCall(request).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0), "> GET /foo req-1");
+        assertEquals(
+                logLines.get(1).replaceAll("\\(\\d+ ms\\)", "(X ms)"),
+                "< GET /foo -> 201 (X ms) req-1"
+        );
+    }
+
+    @Test
+    public void shouldSummarizeMultipartBody() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, true)
+                .partPreviewLimit(10);
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        MultipartBody body = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("title", "holiday")
+                .addFormDataPart("meta", null, RequestBody.create("{\"album\":\"summer 2023\"}", MediaType.parse("application/json")))
+                .addFormDataPart("photo", "photo.jpg", RequestBody.create(new byte[2_000_000], MediaType.parse("image/jpeg")))
+                .build();
+
+        Request request = new Request.Builder()
+                .url(mockServer.url("/upload"))
+                .post(body)
+                .build();
+
+        httpClient.newCall(request).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0),
+                "HTTP REQ: POST " + mockServer.url("/upload") + "\n" +
+                        "---\n" +
+                        "part name=\"title\" 7 bytes: holiday\n" +
+                        "part name=\"meta\" application/json 23 bytes: {\"album\":\"...\n" +
+                        "part name=\"photo\" filename=\"photo.jpg\" image/jpeg 2000000 bytes"
+        );
+    }
+
+    @Test
+    public void shouldRedactFormFields() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, true)
+                .redactFormFields("Password");
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(mockServer.url("/login"))
+                .post(new FormBody.Builder().add("user", "john doe").add("password", "secret").build())
+                .build();
+
+        httpClient.newCall(request).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0),
+                "HTTP REQ: POST " + mockServer.url("/login") + "\n" +
+                        "---\n" +
+                        "user=john%20doe&password=██"
+        );
+    }
+
+    @Test
+    public void shouldUseRouteProfile() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        mockServer.enqueue(new MockResponse().setResponseCode(201).setBody("it's ok"));
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false)
+                .route(mockServer.getHostName() + "/payments", new CompactOkhttpLogger(logger, false, true));
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        httpClient.newCall(new Request.Builder().url(mockServer.url("/foo")).get().build()).execute();
+        httpClient.newCall(new Request.Builder().url(mockServer.url("/payments/1")).get().build()).execute();
+
+        assertEquals(logLines.size(), 4);
+        assertEquals(
+                logLines.get(1).replaceAll("\\(\\d+ ms\\)", "(X ms)"),
+                "HTTP RESP: GET " + mockServer.url("/foo") + " -> 201 (X ms)"
+        );
+        assertEquals(
+                logLines.get(3).replaceAll("\\(\\d+ ms\\)", "(X ms)"),
+                "HTTP RESP: GET " + mockServer.url("/payments/1") + " -> 201 (X ms)\n" +
+                        "---\n" +
+                        "it's ok"
+        );
+    }
+
+    @Test
+    public void shouldRedactQueryParamsAndCapUrl() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        mockServer.enqueue(new MockResponse().setResponseCode(201).setBody("it's ok"));
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false)
+                .redactQueryParams("token", "Signature");
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        httpClient.newCall(new Request.Builder()
+                .url(mockServer.url("/foo?id=1&token=abc&signature=xyz&flag"))
+                .get().build()).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0), "HTTP REQ: GET " + mockServer.url("/foo") + "?id=1&token=██&signature=██&flag");
+        assertEquals(
+                logLines.get(1).replaceAll("\\(\\d+ ms\\)", "(X ms)"),
+                "HTTP RESP: GET " + mockServer.url("/foo") + "?id=1&token=██&signature=██&flag" + " -> 201 (X ms)"
+        );
+
+        String url = mockServer.url("/batch?ids=1,2,3,4,5,6,7,8,9").toString();
+        httpLogger.maxUrlLength(url.length() - 6);
+        httpClient.newCall(new Request.Builder().url(url).get().build()).execute();
+
+        assertEquals(logLines.size(), 4);
+        assertEquals(logLines.get(2), "HTTP REQ: GET " + url.substring(0, url.length() - 6) + "...(" + url.length() + " chars)");
+    }
+
+    @Test
+    public void shouldCallOverriddenExceptionResponse() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        String url = mockServer.url("/foo").toString();
+        mockServer.shutdown();
+
+        List<String> logLines = new ArrayList<String>();
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false) {
+            @Override
+            protected void logExceptionResponse(Exception e, Request request, long tookMs) {
+                logLines.add("custom " + request.method() + " " + e.getClass().getSimpleName());
+            }
+        };
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .retryOnConnectionFailure(false)
+                .build();
+
+        Request request = new Request.Builder().url(url).get().build();
+        assertThrows(ConnectException.class, () -> { httpClient.newCall(request).execute(); });
+
+        assertEquals(logLines.size(), 1);
+        assertEquals(logLines.get(0), "custom GET ConnectException");
+    }
+
+    @Test
+    public void shouldRedactMultipartFormFields() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, true)
+                .redactFormFields("Password");
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        MultipartBody body = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("user", "john")
+                .addFormDataPart("password", "hunter2")
+                .build();
+
+        httpClient.newCall(new Request.Builder().url(mockServer.url("/login")).post(body).build()).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0),
+                "HTTP REQ: POST " + mockServer.url("/login") + "\n" +
+                        "---\n" +
+                        "part name=\"user\" 4 bytes: john\n" +
+                        "part name=\"password\" 7 bytes: ██"
+        );
+    }
+
+    @Test
+    public void shouldApplyParentRedactionsToRouteProfile() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false)
+                .redactHeaders("authorization")
+                .redactQueryParams("token")
+                .requestFormat("> {method} {url}")
+                .route("*", new CompactOkhttpLogger(logger, true, false).redactHeaders("pin"));
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(mockServer.url("/foo") + "?token=SECRET")
+                .header("Authorization", "Bearer SECRET")
+                .header("pin", "1234")
+                .get().build();
+        httpClient.newCall(request).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0),
+                "> GET " + mockServer.url("/foo") + "?token=██\n" +
+                        "---\n" +
+                        "Authorization: ██\n" +
+                        "pin: ██"
+        );
+    }
+
+    @Test
+    public void shouldRejectNestedRoutes() {
+        CompactOkhttpLogger a = new CompactOkhttpLogger(logger, false, false);
+        CompactOkhttpLogger b = new CompactOkhttpLogger(logger, false, false);
+        CompactOkhttpLogger c = new CompactOkhttpLogger(logger, false, false);
+        a.route("*", b);
+
+        assertThrows(IllegalArgumentException.class, () -> b.route("*", a));
+        assertThrows(IllegalArgumentException.class, () -> b.route("*", c));
+        assertThrows(IllegalArgumentException.class, () -> c.route("*", a));
+        assertThrows(IllegalArgumentException.class, () -> a.route("*", a));
+    }
+
+    @Test
+    public void shouldNotFailRequestWhenUrlRenderingFails() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false) {
+            @Override
+            public String printUrl(HttpUrl url) {
+                throw new IllegalStateException("broken");
+            }
+        };
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        Response response = httpClient.newCall(new Request.Builder().url(mockServer.url("/foo")).get().build()).execute();
+
+        assertEquals(response.code(), 201);
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0), "HTTP REQ: GET " + mockServer.url("/foo"));
+    }
+
+    @Test
+    public void shouldReuseUrlAndConnectionInErrorLine() throws IOException {
+        mockServer = new MockWebServer();
+        mockServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        mockServer.start();
+
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        List<HttpUrl> renderedUrls = new ArrayList<HttpUrl>();
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, false) {
+            @Override
+            public String printUrl(HttpUrl url) {
+                renderedUrls.add(url);
+                return super.printUrl(url);
+            }
+        }.errorFormat("ERR {protocol} {url} {error}");
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addNetworkInterceptor(httpLogger)
+                .readTimeout(100, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+
+        Request request = new Request.Builder().url(mockServer.url("/foo")).get().build();
+        assertThrows(SocketTimeoutException.class, () -> { httpClient.newCall(request).execute(); });
+
+        assertEquals(renderedUrls.size(), 1);
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(1).replaceAll("SocketTimeoutException .*", "SocketTimeoutException"),
+                "ERR http/1.1 " + mockServer.url("/foo") + " java.net.SocketTimeoutException");
+    }
+
+    @Test
+    public void shouldNotPreviewPartWithoutTypeAndName() throws IOException {
+        enableMockServer(201, "it's ok", 0);
+        List<String> logLines = new ArrayList<String>();
+        doAnswer(i -> {
+            return logLines.add(i.getArgument(0));
+        }).when(logger).info(any());
+
+        CompactOkhttpLogger httpLogger = new CompactOkhttpLogger(logger, false, true);
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(httpLogger)
+                .build();
+
+        MultipartBody body = new MultipartBody.Builder()
+                .setType(MultipartBody.MIXED)
+                .addPart(RequestBody.create(new byte[] {0, 1, 2, (byte) 0xff}, null))
+                .build();
+
+        httpClient.newCall(new Request.Builder().url(mockServer.url("/raw")).post(body).build()).execute();
+
+        assertEquals(logLines.size(), 2);
+        assertEquals(logLines.get(0),
+                "HTTP REQ: POST " + mockServer.url("/raw") + "\n" +
+                        "---\n" +
+                        "part 4 bytes"
+        );
+    }
 }
@@ -0,0 +1,88 @@
+package com.paxa.util;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LineTemplateTest {
+    private final Request request = new Request.Builder()
+        .url("http://example.com/user/v1/profile?id=5")
+        .header("X-Request-Id", "abc-123")
+        .get().build();
+
+    private final Response response = new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(404)
+        .message("Not Found")
+        .header("X-Trace", "t-1")
+        .build();
+
+    private String render(String template, Response response, Exception error) {
+        StringBuffer out = new StringBuffer();
+        LineTemplate.compile(template).render(out, request, request.url().toString(), null, response, 12, error);
+        return out.toString();
+    }
+
+    @Test
+    public void shouldRenderPlaceholders() {
+        assertEquals(
+            "GET /user/v1/profile -> 404 (12 ms) abc-123",
+            render("{method} {route} -> {status} ({ms} ms) {header:x-request-id}", response, null)
+        );
+        assertEquals(
+            "http example.com:80 id=5 Not Found t-1",
+            render("{scheme} {host}:{port} {query} {message} {resp-header:X-Trace}", response, null)
+        );
+    }
+
+    @Test
+    public void shouldRenderError() {
+        assertEquals(
+            "GET -> ERROR java.net.SocketTimeoutException timeout",
+            render("{method} -> ERROR {error}", null, new SocketTimeoutException("timeout"))
+        );
+    }
+
+    @Test
+    public void shouldTrimEmptyPlaceholdersAndKeepEscapedBraces() {
+        assertEquals("{GET}", render("{{{method}}} {protocol} {status}", null, null));
+        assertEquals("[GET]   ", render("[{method}]   ", null, null));
+        assertEquals("GET    ", render("{method} {header:x-id}   ", null, null));
+        assertEquals("GET  404", render("{method} {protocol} {status}", response, null));
+        assertEquals("HTTP REQ: GET http://example.com/user/v1/profile?id=5",
+            render(CompactOkhttpLogger.DEFAULT_REQUEST_FORMAT, null, null));
+    }
+
+    @Test
+    public void shouldRejectInvalidTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> LineTemplate.compile("{method"));
+        assertThrows(IllegalArgumentException.class, () -> LineTemplate.compile("{unknown}"));
+        assertThrows(IllegalArgumentException.class, () -> LineTemplate.compile("{header}"));
+        assertThrows(IllegalArgumentException.class, () -> LineTemplate.compile("{status:x}"));
+    }
+
+    // default templates should produce same lines as old String.format, timing is in src/jmh
+    @Test
+    public void shouldMatchStringFormatOutput() {
+        LineTemplate respTemplate = LineTemplate.compile(CompactOkhttpLogger.DEFAULT_RESPONSE_FORMAT);
+        LineTemplate errorTemplate = LineTemplate.compile(CompactOkhttpLogger.DEFAULT_ERROR_FORMAT);
+        Exception error = new SocketTimeoutException("timeout");
+        String url = request.url().toString();
+
+        StringBuffer out = new StringBuffer();
+        respTemplate.render(out, request, url, null, response, 275, null);
+        assertEquals(String.format("HTTP RESP: %s %s -> %d (%d ms)", request.method(), request.url(), response.code(), 275L), out.toString());
+
+        out.setLength(0);
+        errorTemplate.render(out, request, url, null, null, 275, error);
+        assertEquals(String.format("HTTP RESP: %s %s -> ERROR %s %s (%d ms)",
+            request.method(), request.url(), error.getClass().getName(), error.getMessage(), 275L), out.toString());
+    }
+}
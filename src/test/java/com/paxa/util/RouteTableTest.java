@@ -0,0 +1,75 @@
+package com.paxa.util;
+
+import okhttp3.HttpUrl;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RouteTableTest {
+    private String resolve(RouteTable<String> table, String url) {
+        return table.resolve(HttpUrl.get(url));
+    }
+
+    @Test
+    public void shouldMatchHostAndLongestPathPrefix() {
+        RouteTable<String> table = new RouteTable<>();
+        table.add("api.example.com", "api");
+        table.add("api.example.com/payments/v1", "payments");
+
+        assertEquals("api", resolve(table, "https://api.example.com/"));
+        assertEquals("api", resolve(table, "https://api.example.com/payments"));
+        assertEquals("payments", resolve(table, "https://api.example.com/payments/v1"));
+        assertEquals("payments", resolve(table, "https://api.example.com/payments/v1/charge?id=1"));
+        assertEquals("api", resolve(table, "https://api.example.com/payments/v10"));
+        assertNull(resolve(table, "https://example.com/payments/v1"));
+    }
+
+    @Test
+    public void shouldPreferSpecificHostOverWildcard() {
+        RouteTable<String> table = new RouteTable<>();
+        table.add("*", "any");
+        table.add("*.example.com", "example");
+        table.add("cdn.example.com", "cdn");
+
+        assertEquals("cdn", resolve(table, "https://cdn.example.com/img.png"));
+        assertEquals("example", resolve(table, "https://a.b.example.com/"));
+        assertEquals("any", resolve(table, "https://example.com/"));
+        assertEquals("any", resolve(table, "http://localhost:8080/"));
+    }
+
+    @Test
+    public void shouldFallbackToWildcardWhenPathNotMatched() {
+        RouteTable<String> table = new RouteTable<>();
+        table.add("*.example.com", "example");
+        table.add("api.example.com/metrics", "metrics");
+
+        assertEquals("metrics", resolve(table, "https://api.example.com/metrics/push"));
+        assertEquals("example", resolve(table, "https://api.example.com/users"));
+    }
+
+    @Test
+    public void shouldMatchEncodedPath() {
+        RouteTable<String> table = new RouteTable<>();
+        table.add("api.example.com/a%20b", "encoded");
+        table.add("api.example.com/c d", "plain");
+
+        assertEquals("encoded", resolve(table, "https://api.example.com/a%20b/x"));
+        assertEquals("plain", resolve(table, "https://api.example.com/c%20d"));
+    }
+
+    @Test
+    public void shouldRejectInvalidPatterns() {
+        RouteTable<String> table = new RouteTable<>();
+        assertThrows(IllegalArgumentException.class, () -> table.add("", "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.add("/path", "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.add("api.*.com", "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.add("*.", "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.add("*.*.example.com", "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.add("localhost:8080/foo", "x"));
+        assertThrows(IllegalArgumentException.class, () -> table.add("localhost/foo?a=1", "x"));
+        assertTrue(table.isEmpty());
+    }
+}